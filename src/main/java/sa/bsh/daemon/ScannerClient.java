@@ -0,0 +1,75 @@
+package sa.bsh.daemon;
+
+import sa.bsh.scanner.Token;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client of a {@link sa.bsh.daemon.ScannerDaemon} running on the same machine.
+ */
+public class ScannerClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Connect to the daemon listening on the given port of the loopback interface.
+     * @param port The daemon port.
+     * @throws IOException If the connection fails, or the daemon speaks a different protocol version or token types.
+     */
+    public ScannerClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ScannerDaemon.writeHandshake(out);
+            out.flush();
+            ScannerDaemon.readHandshake(in);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Scan the given source on the daemon.
+     * @param source The source code.
+     * @return The tokens, ending with the {@code EOF} token or the first {@code ILLEGAL} token.
+     * @throws IllegalArgumentException If the source is longer than {@link ScannerDaemon#MAX_SOURCE_LENGTH}.
+     * @throws IOException
+     */
+    public List<Token> scan(String source) throws IOException {
+        // The daemon closes the connection on a too long source without reading it, fail before sending it.
+        if (source.length() > ScannerDaemon.MAX_SOURCE_LENGTH)
+            throw new IllegalArgumentException("source is longer than " + ScannerDaemon.MAX_SOURCE_LENGTH + " chars");
+
+        ScannerDaemon.writeString(source, out);
+        out.flush();
+
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = ScannerDaemon.read(in);
+            tokens.add(token);
+        } while (!token.isEndOfInput() && !token.isIllegal());
+        return tokens;
+    }
+
+    /**
+     * Close the connection to the daemon.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
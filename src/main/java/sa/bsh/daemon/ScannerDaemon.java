@@ -0,0 +1,290 @@
+package sa.bsh.daemon;
+
+import sa.bsh.scanner.Scanner;
+import sa.bsh.scanner.Token;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long running scanner process. Keeping the process alive lets every request after the first one run on code that
+ * is already compiled by the JVM, instead of paying the start up and warm up cost on each run.
+ *
+ * <p>The daemon listens on the loopback interface only. A connection starts with a handshake: the client sends
+ * {@link #PROTOCOL_VERSION} as a {@code byte} and {@link #TYPES_FINGERPRINT} as an {@code int}, the daemon answers
+ * with its own values and closes the connection if they differ. This stops a client built against a different
+ * {@link sa.bsh.scanner.Token.Type} from decoding the wrong token types out of the ordinals.</p>
+ *
+ * <p>After the handshake a connection carries any number of requests, one after the other. A request is the source
+ * as a string. The response is a sequence of tokens, each one written as:
+ * <pre>
+ *   byte   token type ordinal
+ *   int    line
+ *   int    column
+ *   string attribute, only for token types without a predefined attribute
+ * </pre>
+ * A string is its length in chars as an {@code int}, followed by its UTF-16 chars. Unlike UTF-8 this keeps unpaired
+ * surrogates, which the scanner returns as {@code ILLEGAL} attributes when it meets characters outside the BMP.
+ * The response ends with the {@code EOF} token, or with the first {@code ILLEGAL} token as the scanner does not
+ * advance past illegal characters.</p>
+ *
+ * <p>Sources must not be longer than {@link #MAX_SOURCE_LENGTH} chars. For an invalid length the daemon answers
+ * with a single {@code ILLEGAL} token and closes the connection.</p>
+ *
+ * <p>Connections are served by a pool of reusable threads, so the per-thread scanners of
+ * {@link sa.bsh.scanner.Scanner#local(java.io.Reader)} are reused across connections.</p>
+ *
+ * <p>The daemon closes itself once it has been idle, i.e. without any open connection, for the idle timeout.</p>
+ */
+public class ScannerDaemon implements Closeable {
+    /**
+     * Maximum length of a source in chars.
+     */
+    public static final int MAX_SOURCE_LENGTH = 8 * 1024 * 1024;
+
+    /**
+     * Version of the wire format, increment it on every change of the format.
+     */
+    public static final byte PROTOCOL_VERSION = 1;
+
+    /**
+     * Hash of the token type names in order, it changes whenever a token type is added, removed or moved.
+     */
+    public static final int TYPES_FINGERPRINT;
+
+    // Token types by ordinal, values() clones the array on every call.
+    private static final Token.Type[] types = Token.Type.values();
+
+    static {
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++)
+            names[i] = types[i].name();
+        TYPES_FINGERPRINT = Arrays.hashCode(names);
+    }
+
+    private final ServerSocket server;
+    private final long idleTimeout;
+    private final AtomicInteger connections = new AtomicInteger();
+    // Threads are not daemon threads, so open connections keep the process alive after the daemon is closed.
+    private final ExecutorService executor =
+            Executors.newCachedThreadPool(task -> new Thread(task, "qahwa-daemon-connection"));
+    private volatile long lastActivity;
+
+    /**
+     * Create a new daemon listening on the loopback interface.
+     * @param port The port to listen on, or 0 to pick any free port.
+     * @param idleTimeout Idle time in milliseconds after which the daemon closes itself.
+     * @throws IOException
+     */
+    public ScannerDaemon(int port, int idleTimeout) throws IOException {
+        assert idleTimeout > 0 : "Idle timeout must be > 0";
+
+        this.server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.server.setSoTimeout(idleTimeout);
+        this.idleTimeout = idleTimeout;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Get the port the daemon is listening on.
+     * @return The port number.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Check if the daemon has stopped accepting connections.
+     * @return {@code true} if the daemon is closed.
+     */
+    public boolean isClosed() {
+        return server.isClosed();
+    }
+
+    /**
+     * Start accepting connections in a background thread.
+     */
+    public void start() {
+        Thread thread = new Thread(this::serve, "qahwa-daemon");
+        thread.start();
+    }
+
+    /**
+     * Stop accepting connections. Connections that are already open are served until the client closes them, then
+     * the connection threads exit.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        executor.shutdown();
+    }
+
+    // Accept connections until closed or idle, each connection is served by a thread of the pool.
+    private void serve() {
+        try {
+            while (!server.isClosed()) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (connections.get() == 0 && System.currentTimeMillis() - lastActivity >= idleTimeout)
+                        close();
+                    continue;
+                }
+
+                connections.incrementAndGet();
+                try {
+                    executor.execute(() -> handle(socket));
+                } catch (RejectedExecutionException e) {
+                    // close() shut the pool down after the connection was accepted, drop it.
+                    connections.decrementAndGet();
+                    socket.close();
+                }
+            }
+        } catch (IOException e) {
+            // The server socket has been closed.
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Serve the requests of a single connection.
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            byte version = in.readByte();
+            int fingerprint = in.readInt();
+            writeHandshake(out);
+            out.flush();
+            if (version != PROTOCOL_VERSION || fingerprint != TYPES_FINGERPRINT)
+                return;
+
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    // The client closed the connection.
+                    return;
+                }
+
+                // Do not trust the length, it decides how much memory is allocated.
+                if (length < 0 || length > MAX_SOURCE_LENGTH) {
+                    write(new Token(Token.Type.ILLEGAL, 1, 1, "invalid source length"), out);
+                    return;
+                }
+
+                char[] source = new char[length];
+                for (int i = 0; i < length; i++)
+                    source[i] = in.readChar();
+                scan(source, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Drop the connection.
+        } finally {
+            lastActivity = System.currentTimeMillis();
+            connections.decrementAndGet();
+        }
+    }
+
+    // Scan the source and write the tokens.
+    private static void scan(char[] source, DataOutputStream out) throws IOException {
+        Scanner scanner = Scanner.local(new CharArrayReader(source));
+        Token token;
+        do {
+            token = scanner.scan();
+            write(token, out);
+        } while (!token.isEndOfInput() && !token.isIllegal());
+    }
+
+    // Write the protocol version and the token types fingerprint.
+    static void writeHandshake(DataOutputStream out) throws IOException {
+        out.writeByte(PROTOCOL_VERSION);
+        out.writeInt(TYPES_FINGERPRINT);
+    }
+
+    // Read the handshake of the other side and check it matches ours.
+    static void readHandshake(DataInputStream in) throws IOException {
+        byte version = in.readByte();
+        int fingerprint = in.readInt();
+        if (version != PROTOCOL_VERSION)
+            throw new IOException("unsupported protocol version " + version);
+        if (fingerprint != TYPES_FINGERPRINT)
+            throw new IOException("token types do not match");
+    }
+
+    // Write a single token.
+    static void write(Token token, DataOutputStream out) throws IOException {
+        out.writeByte(token.getType().ordinal());
+        out.writeInt(token.getLine());
+        out.writeInt(token.getColumn());
+        if (!token.getType().hasPredefinedAttr())
+            writeString(token.getAttr(), out);
+    }
+
+    // Write a string as its length followed by its chars. Not writeUTF(), it is limited to 65535 bytes.
+    static void writeString(String string, DataOutputStream out) throws IOException {
+        out.writeInt(string.length());
+        out.writeChars(string);
+    }
+
+    // Read a string written by writeString().
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        // An attribute can not be longer than the source it came from.
+        if (length < 0 || length > MAX_SOURCE_LENGTH)
+            throw new IOException("invalid string length " + length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = in.readChar();
+        return new String(chars);
+    }
+
+    // Read a single token.
+    static Token read(DataInputStream in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= types.length)
+            throw new IOException("invalid token type " + ordinal);
+        Token.Type type = types[ordinal];
+        int line = in.readInt();
+        int column = in.readInt();
+        if (type.hasPredefinedAttr())
+            return new Token(type, line, column);
+
+        return new Token(type, line, column, readString(in));
+    }
+
+    /**
+     * Run the daemon until it becomes idle.
+     * @param args The port number, and optionally the idle timeout in milliseconds. Defaults to 10 minutes.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: ScannerDaemon port [idle-timeout-millis]");
+            System.exit(1);
+        }
+
+        int port = Integer.parseInt(args[0]);
+        int idleTimeout = args.length > 1 ? Integer.parseInt(args[1]) : 10 * 60 * 1000;
+        new ScannerDaemon(port, idleTimeout).start();
+    }
+}
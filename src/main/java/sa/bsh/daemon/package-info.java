@@ -0,0 +1,5 @@
+package sa.bsh.daemon;
+
+/**
+ * Resident scanner process serving lexing requests over a local socket.
+ */
@@ -1,5 +1,6 @@
 package sa.bsh.scanner;
 
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -9,14 +10,130 @@ import java.util.Arrays;
  * Scanner scans the input for tokens and performs lexical analysis.
  */
 public class Scanner {
-    private final Reader reader;
     // Keep this list of reserved word sorted in ascending order to look them up using binary search.
-    private final String[] reserved = {"else", "elseif", "end", "false", "if", "null", "true", "var", "while"};
+    private static final String[] reserved = {"else", "elseif", "end", "false", "if", "null", "true", "var", "while"};
+    // Token types of the reserved words above, in the same order.
+    private static final Token.Type[] reservedTypes = new Token.Type[reserved.length];
+    // One scanner per thread, see local().
+    private static final ThreadLocal<Scanner> pool = new ThreadLocal<>();
+
+    /*
+     * Token start classes, scanToken() dispatches on the class of the current character once. The order of the
+     * checks in startClassOf() decides the class of characters matching more than one, e.g. '\n' is a whitespace.
+     */
+    static final int START_ILLEGAL = 0;
+    static final int START_IDENTIFIER = 1;
+    static final int START_NEWLINE = 2;
+    static final int START_WHITESPACE = 3;
+    static final int START_NUMBER = 4;
+    static final int START_EOF = 5;
+
+    /*
+     * Number character classes, the input alphabet of the number DFA. 'b' and 'B' are both hexadecimal digits and
+     * the binary prefix, the state tells them apart.
+     */
+    static final int NUMBER_OTHER = 0;
+    static final int NUMBER_ZERO = 1;
+    static final int NUMBER_ONE = 2;
+    // '2' ... '9'
+    static final int NUMBER_DIGIT = 3;
+    // Non ASCII digits, only valid in decimal numbers.
+    static final int NUMBER_UNICODE_DIGIT = 4;
+    static final int NUMBER_X = 5;
+    static final int NUMBER_B = 6;
+    // Hexadecimal letters except 'b' and 'B'.
+    static final int NUMBER_HEX_LETTER = 7;
+    static final int NUMBER_L = 8;
+    private static final int NUMBER_CLASSES = 9;
+
+    /*
+     * Each ASCII character is described by one byte:
+     *  * bits 0-2: token start class
+     *  * bits 3-6: number character class
+     *  * bit 7: can be part of an identifier
+     * Characters outside ASCII are classified by the slow path, using Character.
+     */
+    private static final int START_MASK = 0x7;
+    private static final int NUMBER_SHIFT = 3;
+    private static final int NUMBER_MASK = 0xF;
+    private static final int IDENTIFIER_PART = 0x80;
+    private static final byte[] classes = new byte[128];
+
+    /*
+     * Number DFA, see scanNumber() for the grammar. The transition table is indexed by
+     * state * NUMBER_CLASSES + number class, NO_TRANSITION ends the number and the final state decides its type.
+     */
+    private static final int NUMBER_START = 0;
+    private static final int NUMBER_ZERO_STATE = 1;
+    private static final int NUMBER_DECIMAL = 2;
+    private static final int NUMBER_HEX_PREFIX = 3;
+    private static final int NUMBER_HEX = 4;
+    private static final int NUMBER_BINARY_PREFIX = 5;
+    private static final int NUMBER_BINARY = 6;
+    private static final int NUMBER_LONG = 7;
+    private static final int NUMBER_STATES = 8;
+    private static final byte NO_TRANSITION = -1;
+    private static final byte[] numberTransitions = new byte[NUMBER_STATES * NUMBER_CLASSES];
+    // Token type of the number ending in each state, ILLEGAL for prefixes without digits.
+    private static final Token.Type[] numberTypes = {
+            Token.Type.ILLEGAL, Token.Type.INTEGER, Token.Type.INTEGER, Token.Type.ILLEGAL, Token.Type.INTEGER,
+            Token.Type.ILLEGAL, Token.Type.INTEGER, Token.Type.LONG
+    };
+
+    static {
+        for (int i = 0; i < reserved.length; i++)
+            reservedTypes[i] = Token.Type.valueOf(reserved[i].toUpperCase());
+
+        // Derive the table from Character so that both paths agree on every ASCII character.
+        for (int c = 0; c < classes.length; c++) {
+            int flags = startClassOf(c) | numberClassOf(c) << NUMBER_SHIFT;
+            if (Character.isJavaIdentifierPart(c))
+                flags |= IDENTIFIER_PART;
+            classes[c] = (byte) flags;
+        }
+
+        Arrays.fill(numberTransitions, NO_TRANSITION);
+        int[] decimal = {NUMBER_ZERO, NUMBER_ONE, NUMBER_DIGIT, NUMBER_UNICODE_DIGIT};
+        int[] hex = {NUMBER_ZERO, NUMBER_ONE, NUMBER_DIGIT, NUMBER_B, NUMBER_HEX_LETTER};
+        int[] binary = {NUMBER_ZERO, NUMBER_ONE};
+
+        transition(NUMBER_START, new int[]{NUMBER_ONE, NUMBER_DIGIT, NUMBER_UNICODE_DIGIT}, NUMBER_DECIMAL);
+        transition(NUMBER_START, new int[]{NUMBER_ZERO}, NUMBER_ZERO_STATE);
+        transition(NUMBER_ZERO_STATE, decimal, NUMBER_DECIMAL);
+        transition(NUMBER_ZERO_STATE, new int[]{NUMBER_X}, NUMBER_HEX_PREFIX);
+        transition(NUMBER_ZERO_STATE, new int[]{NUMBER_B}, NUMBER_BINARY_PREFIX);
+        transition(NUMBER_ZERO_STATE, new int[]{NUMBER_L}, NUMBER_LONG);
+        transition(NUMBER_DECIMAL, decimal, NUMBER_DECIMAL);
+        transition(NUMBER_DECIMAL, new int[]{NUMBER_L}, NUMBER_LONG);
+        transition(NUMBER_HEX_PREFIX, hex, NUMBER_HEX);
+        transition(NUMBER_HEX, hex, NUMBER_HEX);
+        transition(NUMBER_HEX, new int[]{NUMBER_L}, NUMBER_LONG);
+        transition(NUMBER_BINARY_PREFIX, binary, NUMBER_BINARY);
+        transition(NUMBER_BINARY, binary, NUMBER_BINARY);
+        transition(NUMBER_BINARY, new int[]{NUMBER_L}, NUMBER_LONG);
+    }
+
+    // Add the transitions from a state to another on the given number classes.
+    private static void transition(int from, int[] numberClasses, int to) {
+        for (int numberClass : numberClasses)
+            numberTransitions[from * NUMBER_CLASSES + numberClass] = (byte) to;
+    }
+
+    private Reader reader;
+    // Largest scratch buffer capacity kept across resets, larger buffers are dropped.
+    private static final int MAX_BUFFER_CAPACITY = 4096;
+
+    // Scratch buffer for building attributes, reused across tokens.
+    private StringBuilder builder = new StringBuilder();
     private int ch;
     private int lineNumber;
     private int columnNumber;
     private boolean seenEOF;
     private Position position;
+    // Optional instrumentation, null when disabled.
+    private ScannerListener listener;
+    // Wraps the reader to count characters, only while a listener is set.
+    private CountingReader counter;
 
     /**
      * Create a new scanner from a given reader object.
@@ -24,22 +141,115 @@ public class Scanner {
      * @throws IOException
      */
     public Scanner(Reader reader) throws IOException {
+        reset(reader);
+    }
+
+    /**
+     * Create a new scanner from a string containing the source. A string reader will be created to read the source.
+     * @param source The source code.
+     * @throws IOException
+     */
+    public Scanner(String source) throws IOException {
+        this(new StringReader(source));
+    }
+
+    /**
+     * Get the scanner of the current thread, reset to scan the given reader. The same object is returned on every
+     * call from the same thread, so it must not be used once local() is called again on that thread. Any listener
+     * set by a previous user of the scanner is removed.
+     * @param reader The source reader object.
+     * @return The scanner of the current thread.
+     * @throws IOException
+     */
+    public static Scanner local(Reader reader) throws IOException {
+        Scanner scanner = pool.get();
+        if (scanner == null) {
+            scanner = new Scanner(reader);
+            pool.set(scanner);
+            return scanner;
+        }
+        scanner.setListener(null);
+        scanner.reset(reader);
+        return scanner;
+    }
+
+    /**
+     * Get the scanner of the current thread, reset to scan the given source.
+     * @param source The source code.
+     * @return The scanner of the current thread.
+     * @throws IOException
+     * @see #local(Reader)
+     */
+    public static Scanner local(String source) throws IOException {
+        return local(new StringReader(source));
+    }
+
+    /**
+     * Start scanning a new input from the beginning, reusing this scanner. The listener, if any, is kept. The
+     * reader is released once the end of input is reached.
+     * @param reader The source reader object.
+     * @throws IOException
+     */
+    public void reset(Reader reader) throws IOException {
         this.reader = reader;
         this.lineNumber = 1;
         this.columnNumber = 1;
         this.seenEOF = false;
+        this.position = null;
+        this.counter = null;
+        // A single long token must not pin a large buffer for the life of a long-lived scanner.
+        if (builder.capacity() > MAX_BUFFER_CAPACITY)
+            builder = new StringBuilder();
+        if (listener != null)
+            countCharacters();
 
         // Do not call next() as it alters column
         this.ch = reader.read();
+        if (ch == -1) {
+            this.reader = null;
+            this.counter = null;
+        }
     }
 
     /**
-     * Create a new scanner from a string containing the source. A string reader will be created to read the source.
+     * Start scanning a new source string from the beginning, reusing this scanner.
      * @param source The source code.
      * @throws IOException
      */
-    public Scanner(String source) throws IOException {
-        this(new StringReader(source));
+    public void reset(String source) throws IOException {
+        reset(new StringReader(source));
+    }
+
+    /**
+     * Set a listener to be notified of every scanned token, or {@code null} to disable instrumentation.
+     * @param listener The listener object.
+     * @see sa.bsh.scanner.ScannerStatistics
+     */
+    public void setListener(ScannerListener listener) {
+        this.listener = listener;
+        if (listener != null && counter == null)
+            countCharacters();
+        else if (listener == null && counter != null) {
+            reader = counter.unwrap();
+            counter = null;
+        }
+    }
+
+    // Wrap the reader to count the characters read from it.
+    private void countCharacters() {
+        // Nothing is left to count at the end of input.
+        if (reader == null)
+            return;
+        counter = new CountingReader(reader);
+        reader = counter;
+    }
+
+    /**
+     * Get the listener notified of every scanned token.
+     * @return The listener object, or {@code null} if instrumentation is disabled.
+     */
+    public ScannerListener getListener() {
+        return listener;
     }
 
     /**
@@ -48,37 +258,56 @@ public class Scanner {
      * @throws IOException
      */
     public Token scan() throws IOException {
-        do {
-            if (ch == -1) {
-                return new Token(Token.Type.EOF, new Position(lineNumber, columnNumber));
-            }
-
-            // Remember the current position.
-            position = markPosition();
-
-            // Begin with identifiers (and reserved words) as they are the most used type of tokens.
-            if (Character.isJavaIdentifierStart(ch)) {
-                return scanIdentifierOrReserved();
-            }
-
-            // Handle newline, in the forms \n and \r\n.
-            else if (ch == '\n' || ch == '\r') {
-                return scanNewline();
-            }
+        // Characters are counted by the reader wrapper only while a listener is set, so the uninstrumented path
+        // costs this branch alone.
+        if (listener == null)
+            return scanToken();
+
+        // Keep a reference, the counter is released at the end of input.
+        CountingReader counter = this.counter;
+        boolean atEOF = ch == -1;
+        long read = atEOF ? 0 : counter.getCount();
+        long start = System.nanoTime();
+        Token token = scanToken();
+        long nanos = System.nanoTime() - start;
+
+        // The scanner reads one character ahead, so the characters read while scanning equal the characters
+        // consumed, except the last one which is consumed by reading EOF.
+        int characters = atEOF ? 0 : (int) (counter.getCount() - read) + (ch == -1 ? 1 : 0);
+        listener.tokenScanned(token, characters, nanos);
+        return token;
+    }
 
-            // Skip whitespaces (\n, \r should already been handled).
-            else if (Character.isWhitespace(ch)) {
-                next();
-            }
+    // Scan the next token.
+    private Token scanToken() throws IOException {
+        do {
+            switch (startClass(ch)) {
+                case START_EOF:
+                    return new Token(Token.Type.EOF, new Position(lineNumber, columnNumber));
+
+                // Identifiers and reserved words.
+                case START_IDENTIFIER:
+                    position = markPosition();
+                    return scanIdentifierOrReserved();
+
+                // Newline, in the forms \n and \r\n.
+                case START_NEWLINE:
+                    position = markPosition();
+                    return scanNewline();
+
+                // Skip whitespaces (\n, \r are newlines).
+                case START_WHITESPACE:
+                    next();
+                    break;
 
-            // Check for digits
-            else if (Character.isDigit(ch)) {
-                return scanNumber();
-            }
+                case START_NUMBER:
+                    position = markPosition();
+                    return scanNumber();
 
-            else {
-                // Illegal character is found.
-                return new Token(Token.Type.ILLEGAL, position, Character.toString((char) ch));
+                default:
+                    // Illegal character is found.
+                    position = markPosition();
+                    return new Token(Token.Type.ILLEGAL, position, Character.toString((char) ch));
             }
         } while (true);
     }
@@ -96,80 +325,92 @@ public class Scanner {
          * Exponent : ('e' | 'E') ('+' | '-')? Digit+
          * Double   : Digits Exponent | Digits '.' Digits* Exponent
          */
-        // Construct number attribute.
-        StringBuilder builder = new StringBuilder();
-
-        if (ch == '0') {
+        // Run the number DFA, consuming characters as long as there is a transition.
+        builder.setLength(0);
+        int state = NUMBER_START;
+        do {
+            int target = numberTransitions[state * NUMBER_CLASSES + numberClass(ch)];
+            if (target == NO_TRANSITION)
+                break;
             builder.append((char) ch);
             next();
+            state = target;
+        } while (true);
 
-            // Hexadecimal
-            if (ch == 'x' || ch == 'X') {
-                builder.append((char) ch);
-                next();
-
-                // Must have at least one digit.
-                if (!isHexDigit(ch))
-                    return new Token(Token.Type.ILLEGAL, position, "invalid number format");
-
-                do {
-                    builder.append((char) ch);
-                    next();
-                } while (isHexDigit(ch));
-
-                if (ch == 'l' || ch == 'L') {
-                    builder.append((char) ch);
-                    next();
-                    return new Token(Token.Type.LONG, position, builder.toString());
-                }
-
-                return new Token(Token.Type.INTEGER, position, builder.toString());
-            }
-            // Binary
-            else if (ch == 'b' || ch == 'B') {
-                builder.append((char) ch);
-                next();
-
-                // Must have at least one digit.
-                if (ch != '0' && ch != '1')
-                    return new Token(Token.Type.ILLEGAL, position, "invalid number format");
+        Token.Type type = numberTypes[state];
+        // A prefix (0x or 0b) must be followed by at least one digit.
+        if (type == Token.Type.ILLEGAL)
+            return new Token(Token.Type.ILLEGAL, position, "invalid number format");
 
-                do {
-                    builder.append((char) ch);
-                    next();
-                } while (ch == '0' || ch == '1');
+        assert ch != '.' || state != NUMBER_ZERO_STATE && state != NUMBER_DECIMAL
+                : "Floating point numbers are not supported yet";
+        return new Token(type, position, builder.toString());
+    }
 
-                if (ch == 'l' || ch == 'L') {
-                    builder.append((char) ch);
-                    next();
-                    return new Token(Token.Type.LONG, position, builder.toString());
-                }
+    // Get the token start class of the given character, EOF (-1) included.
+    static int startClass(int ch) {
+        if (isAscii(ch))
+            return classes[ch] & START_MASK;
+        return startClassOf(ch);
+    }
 
-                return new Token(Token.Type.INTEGER, position, builder.toString());
-            }
-        }
+    // Get the number class of the given character, EOF (-1) included.
+    static int numberClass(int ch) {
+        if (isAscii(ch))
+            return classes[ch] >> NUMBER_SHIFT & NUMBER_MASK;
+        return numberClassOf(ch);
+    }
 
-        while (Character.isDigit(ch)) {
-            builder.append((char) ch);
-            next();
-        }
+    // Check if the given character can be part of an identifier. EOF (-1) is not.
+    static boolean isIdentifierPart(int ch) {
+        if (isAscii(ch))
+            return (classes[ch] & IDENTIFIER_PART) != 0;
+        return ch != -1 && Character.isJavaIdentifierPart(ch);
+    }
 
-        if (ch == 'l' || ch == 'L') {
-            builder.append((char) ch);
-            next();
-            return new Token(Token.Type.LONG, position, builder.toString());
-        }
+    // Compute the token start class of the given character, used to build the table and for non ASCII characters.
+    private static int startClassOf(int ch) {
+        if (ch == -1)
+            return START_EOF;
+        // Identifiers (and reserved words) come first as they are the most used type of tokens.
+        if (Character.isJavaIdentifierStart(ch))
+            return START_IDENTIFIER;
+        if (ch == '\n' || ch == '\r')
+            return START_NEWLINE;
+        if (Character.isWhitespace(ch))
+            return START_WHITESPACE;
+        if (Character.isDigit(ch))
+            return START_NUMBER;
+        return START_ILLEGAL;
+    }
 
-        else if (ch == '.') {
-            assert false;
+    // Compute the number class of the given character, used to build the table and for non ASCII characters.
+    private static int numberClassOf(int ch) {
+        switch (ch) {
+            case '0':
+                return NUMBER_ZERO;
+            case '1':
+                return NUMBER_ONE;
+            case 'x': case 'X':
+                return NUMBER_X;
+            case 'b': case 'B':
+                return NUMBER_B;
+            case 'l': case 'L':
+                return NUMBER_L;
+            case 'a': case 'c': case 'd': case 'e': case 'f':
+            case 'A': case 'C': case 'D': case 'E': case 'F':
+                return NUMBER_HEX_LETTER;
         }
-
-        return new Token(Token.Type.INTEGER, position, builder.toString());
+        if (ch >= '2' && ch <= '9')
+            return NUMBER_DIGIT;
+        if (ch != -1 && Character.isDigit(ch))
+            return NUMBER_UNICODE_DIGIT;
+        return NUMBER_OTHER;
     }
 
-    // Check if the given character is hexadecimal digit.
-    private boolean isHexDigit(int ch) {
-        return ch >= '0' && ch <= '9' || ch >= 'a' && ch <= 'f' || ch >= 'A' && ch <= 'F';
+    // Check if the given character is in the ASCII range, EOF (-1) is not.
+    private static boolean isAscii(int ch) {
+        return (ch & ~0x7F) == 0;
     }
 
     // Scan newline.
@@ -188,23 +429,55 @@ public class Scanner {
     // Scan identifiers and reserved words.
     private Token scanIdentifierOrReserved() throws IOException {
         // Construct the identifier attribute.
-        StringBuilder builder = new StringBuilder();
+        builder.setLength(0);
         do {
             builder.append((char) ch);
             next();
-        } while (Character.isJavaIdentifierPart((char) ch));
+        } while (isIdentifierPart(ch));
 
         // Check first for reserved words
-        int i = Arrays.binarySearch(reserved, builder.toString());
+        int i = findReserved(builder);
         if (i >= 0) {
-            Token.Type type = Token.Type.valueOf(reserved[i].toUpperCase());
-            return new Token(type, position);
+            return new Token(reservedTypes[i], position);
         }
 
         // It was an identifier.
         return new Token(Token.Type.IDENTIFIER, position, builder.toString());
     }
 
+    // Binary search the reserved words for the given word without converting it to a string first.
+    private static int findReserved(CharSequence word) {
+        int low = 0;
+        int high = reserved.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(reserved[mid], word);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    // Compare two character sequences lexicographically, like String.compareTo().
+    private static int compare(String a, CharSequence b) {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            int diff = a.charAt(i) - b.charAt(i);
+            if (diff != 0)
+                return diff;
+        }
+        return a.length() - b.length();
+    }
+
+    // Get the capacity of the scratch buffer.
+    int getBufferCapacity() {
+        return builder.capacity();
+    }
+
     // Put the next character in the input in ch
     private void next() throws IOException {
         ch = reader.read();
@@ -217,6 +490,10 @@ public class Scanner {
                 columnNumber++;
                 seenEOF = true;
             }
+            // next() is never called at the end of input, release the reader (and its source) for long-lived
+            // scanners such as local() ones.
+            reader = null;
+            counter = null;
         }
     }
 
@@ -224,4 +501,39 @@ public class Scanner {
     private Position markPosition() {
         return new Position(lineNumber, columnNumber);
     }
-}
\ No newline at end of file
+
+    // Reader that counts the characters read from the wrapped reader.
+    private static class CountingReader extends FilterReader {
+        private long count;
+
+        CountingReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1)
+                count++;
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        // Get the number of characters read so far.
+        long getCount() {
+            return count;
+        }
+
+        // Get the wrapped reader.
+        Reader unwrap() {
+            return in;
+        }
+    }
+}
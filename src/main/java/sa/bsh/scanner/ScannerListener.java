@@ -0,0 +1,17 @@
+package sa.bsh.scanner;
+
+/**
+ * Receives a notification for every token returned by a {@link sa.bsh.scanner.Scanner}.
+ *
+ * @see sa.bsh.scanner.Scanner#setListener(ScannerListener)
+ * @see sa.bsh.scanner.ScannerStatistics
+ */
+public interface ScannerListener {
+    /**
+     * Called after a token has been scanned.
+     * @param token The scanned token.
+     * @param characters The number of characters consumed to scan the token, including skipped whitespaces.
+     * @param nanos The time spent scanning the token in nanoseconds.
+     */
+    void tokenScanned(Token token, int characters, long nanos);
+}
@@ -0,0 +1,97 @@
+package sa.bsh.scanner;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scanner listener that collects token counts, consumed characters and scanning time per token type. One object
+ * can be shared by scanners running on different threads, and it can be exposed through JMX using register().
+ */
+public class ScannerStatistics implements ScannerListener, ScannerStatisticsMBean {
+    private final AtomicLongArray counts = new AtomicLongArray(Token.Type.values().length);
+    private final AtomicLongArray nanos = new AtomicLongArray(Token.Type.values().length);
+    private final AtomicLong characters = new AtomicLong();
+
+    @Override
+    public void tokenScanned(Token token, int characters, long nanos) {
+        int i = token.getType().ordinal();
+        this.counts.incrementAndGet(i);
+        this.nanos.addAndGet(i, nanos);
+        this.characters.addAndGet(characters);
+    }
+
+    /**
+     * Register this object in the platform MBean server under the name
+     * {@code sa.bsh.scanner:type=ScannerStatistics,name=<name>}.
+     * @param name The name used to tell different statistics objects apart.
+     * @return The object name it was registered under.
+     * @throws JMException If the name is malformed or already registered.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("sa.bsh.scanner:type=ScannerStatistics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Get the number of scanned tokens of a given type.
+     * @param type The token type.
+     * @return Number of tokens of the given type.
+     */
+    public long getTokenCount(Token.Type type) {
+        return counts.get(type.ordinal());
+    }
+
+    @Override
+    public long getTokenCount() {
+        return sum(counts);
+    }
+
+    @Override
+    public long getTokenCount(String type) {
+        return getTokenCount(Token.Type.valueOf(type));
+    }
+
+    @Override
+    public long getScanTimeNanos(String type) {
+        return nanos.get(Token.Type.valueOf(type).ordinal());
+    }
+
+    @Override
+    public long getScanTimeNanos() {
+        return sum(nanos);
+    }
+
+    @Override
+    public long getCharacterCount() {
+        return characters.get();
+    }
+
+    @Override
+    public double getIllegalRate() {
+        long total = getTokenCount();
+        if (total == 0)
+            return 0.0;
+        return (double) getTokenCount(Token.Type.ILLEGAL) / total;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+            nanos.set(i, 0);
+        }
+        characters.set(0);
+    }
+
+    // Sum all the elements of the given array.
+    private static long sum(AtomicLongArray array) {
+        long result = 0;
+        for (int i = 0; i < array.length(); i++)
+            result += array.get(i);
+        return result;
+    }
+}
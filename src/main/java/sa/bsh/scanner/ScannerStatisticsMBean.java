@@ -0,0 +1,50 @@
+package sa.bsh.scanner;
+
+/**
+ * JMX management interface of {@link sa.bsh.scanner.ScannerStatistics}.
+ */
+public interface ScannerStatisticsMBean {
+    /**
+     * Get the number of scanned tokens of all types.
+     * @return Number of tokens.
+     */
+    long getTokenCount();
+
+    /**
+     * Get the number of scanned tokens of a given type.
+     * @param type The name of the token type, e.g. {@code IDENTIFIER}.
+     * @return Number of tokens of the given type.
+     * @see sa.bsh.scanner.Token.Type
+     */
+    long getTokenCount(String type);
+
+    /**
+     * Get the time spent scanning tokens of a given type.
+     * @param type The name of the token type, e.g. {@code IDENTIFIER}.
+     * @return Time in nanoseconds.
+     */
+    long getScanTimeNanos(String type);
+
+    /**
+     * Get the time spent scanning tokens of all types.
+     * @return Time in nanoseconds.
+     */
+    long getScanTimeNanos();
+
+    /**
+     * Get the number of characters consumed from the input.
+     * @return Number of characters.
+     */
+    long getCharacterCount();
+
+    /**
+     * Get the ratio of illegal tokens to all scanned tokens.
+     * @return Ratio between 0 and 1, or 0 if nothing has been scanned yet.
+     */
+    double getIllegalRate();
+
+    /**
+     * Reset all counters to zero.
+     */
+    void reset();
+}
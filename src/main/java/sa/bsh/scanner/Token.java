@@ -15,7 +15,7 @@ public class Token {
      * must hold true.
      *
      * For any token t:
-     *  * t in Number set if INTEGER <= t <= DOUBLE
+     *  * t in Number set if LONG <= t <= DOUBLE
      *  * t in Reserved set if VAR <= t <= END
      *
      *  Also, when setting a predefine attribute like EOF, their attributes are messages, keep letters in
@@ -226,8 +226,61 @@ public class Token {
         return type == Type.EOF;
     }
 
+    /**
+     * Check if the token is a number literal.
+     * @return {@code true} if the token is a number literal.
+     */
     public boolean isNumber() {
-        return type.compareTo(Type.INTEGER) >= 0 && type.compareTo(Type.DOUBLE) <= 0;
+        return type.compareTo(Type.LONG) >= 0 && type.compareTo(Type.DOUBLE) <= 0;
+    }
+
+    /**
+     * Decode an {@code INTEGER} token into its primitive value without boxing. Hexadecimal and binary literals
+     * may use all the 32 bits, e.g. {@code 0xFFFFFFFF} is {@code -1}.
+     * @return The value of the literal.
+     * @throws NumberFormatException If the literal does not fit in an {@code int}.
+     */
+    public int intValue() {
+        assert type == Type.INTEGER : "The given token is not an integer";
+        return (int) decodeIntegral(attr, false);
+    }
+
+    /**
+     * Decode a {@code LONG} or an {@code INTEGER} token into its primitive value without boxing.
+     * @return The value of the literal.
+     * @throws NumberFormatException If the literal does not fit in a {@code long}.
+     */
+    public long longValue() {
+        assert type == Type.LONG || type == Type.INTEGER : "The given token is not an integral number";
+        if (type == Type.INTEGER)
+            return intValue();
+        // Drop the 'l' or 'L' suffix.
+        return decodeIntegral(attr.substring(0, attr.length() - 1), true);
+    }
+
+    /**
+     * Decode any number token into a primitive {@code double}. Integral literals are widened like Java does.
+     * @return The value of the literal.
+     */
+    public double doubleValue() {
+        assert isNumber() : "The given token is not a number";
+        if (type == Type.FLOAT || type == Type.DOUBLE)
+            return Double.parseDouble(attr);
+        return longValue();
+    }
+
+    // Decode decimal, hexadecimal and binary literals. Hexadecimal and binary are unsigned bit patterns.
+    private static long decodeIntegral(String digits, boolean isLong) {
+        if (digits.length() > 2 && digits.charAt(0) == '0') {
+            char base = digits.charAt(1);
+            if (base == 'x' || base == 'X')
+                return isLong ? Long.parseUnsignedLong(digits.substring(2), 16)
+                        : Integer.parseUnsignedInt(digits.substring(2), 16);
+            if (base == 'b' || base == 'B')
+                return isLong ? Long.parseUnsignedLong(digits.substring(2), 2)
+                        : Integer.parseUnsignedInt(digits.substring(2), 2);
+        }
+        return isLong ? Long.parseLong(digits) : Integer.parseInt(digits);
     }
 
     /**
@@ -0,0 +1,170 @@
+package sa.bsh.daemon;
+
+import org.junit.Test;
+import sa.bsh.scanner.Scanner;
+import sa.bsh.scanner.Token;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScannerDaemonTest {
+    // Scan the source locally, stopping like the daemon does.
+    private static List<Token> scan(String source) throws Exception {
+        Scanner scanner = new Scanner(source);
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = scanner.scan();
+            tokens.add(token);
+        } while (!token.isEndOfInput() && !token.isIllegal());
+        return tokens;
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        String source1 = "var x\n  while 0x12L\r\nend";
+        String source2 = "if 12 @ 3";
+        // The scanner returns the first half of a surrogate pair as an illegal character.
+        String source3 = "x \uD83D\uDE00";
+        String source4 = "y \uDE00\uD83D";
+
+        try (ScannerDaemon daemon = new ScannerDaemon(0, 60000)) {
+            daemon.start();
+            try (ScannerClient client = new ScannerClient(daemon.getPort())) {
+                assertEquals(scan(source1), client.scan(source1));
+                assertEquals(scan(source2), client.scan(source2));
+                assertEquals(scan(source3), client.scan(source3));
+                assertEquals(new Token(Token.Type.ILLEGAL, 1, 3, "\uD83D"), client.scan(source3).get(1));
+                assertEquals(scan(source4), client.scan(source4));
+                assertEquals(scan(""), client.scan(""));
+            }
+        }
+    }
+
+    @Test
+    public void testLongAttribute() throws Exception {
+        char[] identifier = new char[70000];
+        Arrays.fill(identifier, '\u0642');
+        String source = "var " + new String(identifier);
+
+        try (ScannerDaemon daemon = new ScannerDaemon(0, 60000)) {
+            daemon.start();
+            try (ScannerClient client = new ScannerClient(daemon.getPort())) {
+                assertEquals(scan(source), client.scan(source));
+            }
+        }
+    }
+
+    // Send a raw length prefix and check the daemon rejects it and closes the connection.
+    private static void assertRejected(int port, int length) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            ScannerDaemon.writeHandshake(out);
+            out.writeInt(length);
+            out.flush();
+            ScannerDaemon.readHandshake(in);
+
+            assertEquals(new Token(Token.Type.ILLEGAL, 1, 1, "invalid source length"), ScannerDaemon.read(in));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testHandshakeMismatch() throws Exception {
+        try (ScannerDaemon daemon = new ScannerDaemon(0, 60000)) {
+            daemon.start();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                out.writeByte(ScannerDaemon.PROTOCOL_VERSION);
+                out.writeInt(ScannerDaemon.TYPES_FINGERPRINT + 1);
+                out.flush();
+
+                // The daemon tells its own values, then closes the connection.
+                ScannerDaemon.readHandshake(in);
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidTokenType() throws Exception {
+        byte[] bytes = {(byte) 0xFF, 0, 0, 0, 1, 0, 0, 0, 1};
+        ScannerDaemon.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void testInvalidLength() throws Exception {
+        try (ScannerDaemon daemon = new ScannerDaemon(0, 60000)) {
+            daemon.start();
+            assertRejected(daemon.getPort(), -5);
+            assertRejected(daemon.getPort(), ScannerDaemon.MAX_SOURCE_LENGTH + 1);
+
+            // The daemon is still serving.
+            try (ScannerClient client = new ScannerClient(daemon.getPort())) {
+                assertEquals(scan("a"), client.scan("a"));
+            }
+        }
+    }
+
+    @Test
+    public void testCloseServesOpenConnections() throws Exception {
+        ScannerDaemon daemon = new ScannerDaemon(0, 60000);
+        daemon.start();
+
+        try (ScannerClient client = new ScannerClient(daemon.getPort())) {
+            assertEquals(scan("a"), client.scan("a"));
+            daemon.close();
+            assertTrue(daemon.isClosed());
+            assertEquals(scan("while b"), client.scan("while b"));
+        }
+    }
+
+    @Test
+    public void testClientRejectsLongSource() throws Exception {
+        char[] source = new char[ScannerDaemon.MAX_SOURCE_LENGTH + 1];
+        Arrays.fill(source, 'a');
+
+        try (ScannerDaemon daemon = new ScannerDaemon(0, 60000)) {
+            daemon.start();
+            try (ScannerClient client = new ScannerClient(daemon.getPort())) {
+                try {
+                    client.scan(new String(source));
+                    fail("Expected IllegalArgumentException");
+                } catch (IllegalArgumentException e) {
+                    // Expected.
+                }
+
+                // Nothing was sent, the connection is still usable.
+                assertEquals(scan("a"), client.scan("a"));
+            }
+        }
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        ScannerDaemon daemon = new ScannerDaemon(0, 100);
+        daemon.start();
+
+        try (ScannerClient client = new ScannerClient(daemon.getPort())) {
+            client.scan("a");
+        }
+
+        for (int i = 0; i < 50 && !daemon.isClosed(); i++)
+            Thread.sleep(100);
+
+        assertTrue(daemon.isClosed());
+    }
+}
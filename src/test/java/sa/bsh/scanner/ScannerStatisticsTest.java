@@ -0,0 +1,88 @@
+package sa.bsh.scanner;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScannerStatisticsTest {
+    @Test
+    public void testTokenScanned() throws Exception {
+        ScannerStatistics statistics = new ScannerStatistics();
+        Scanner scanner = new Scanner("var x\n  12 @");
+        scanner.setListener(statistics);
+
+        for (int i = 0; i < 5; i++)
+            scanner.scan();
+
+        assertEquals(5, statistics.getTokenCount());
+        assertEquals(1, statistics.getTokenCount(Token.Type.VAR));
+        assertEquals(1, statistics.getTokenCount(Token.Type.IDENTIFIER));
+        assertEquals(1, statistics.getTokenCount("NEWLINE"));
+        assertEquals(1, statistics.getTokenCount("INTEGER"));
+        assertEquals(1, statistics.getTokenCount("ILLEGAL"));
+        assertEquals(1.0 / 5, statistics.getIllegalRate(), 1e-9);
+        // The illegal character is not consumed.
+        assertEquals(11, statistics.getCharacterCount());
+    }
+
+    @Test
+    public void testCharactersAtEndOfInput() throws Exception {
+        ScannerStatistics statistics = new ScannerStatistics();
+        Scanner scanner = new Scanner("ab\r\n c");
+        scanner.setListener(statistics);
+
+        Token token;
+        do {
+            token = scanner.scan();
+        } while (!token.isEndOfInput());
+        scanner.scan();
+
+        assertEquals(6, statistics.getCharacterCount());
+        assertEquals(2, statistics.getTokenCount(Token.Type.EOF));
+    }
+
+    @Test
+    public void testListenerRemoved() throws Exception {
+        ScannerStatistics statistics = new ScannerStatistics();
+        Scanner scanner = new Scanner("ab cd");
+        scanner.setListener(statistics);
+        scanner.scan();
+        scanner.setListener(null);
+
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 4, "cd"), scanner.scan());
+        assertEquals(1, statistics.getTokenCount());
+        assertEquals(2, statistics.getCharacterCount());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        ScannerStatistics statistics = new ScannerStatistics();
+        Scanner scanner = new Scanner("a b");
+        scanner.setListener(statistics);
+        scanner.scan();
+
+        statistics.reset();
+
+        assertEquals(0, statistics.getTokenCount());
+        assertEquals(0, statistics.getCharacterCount());
+        assertEquals(0, statistics.getScanTimeNanos());
+        assertEquals(0.0, statistics.getIllegalRate(), 0.0);
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        ScannerStatistics statistics = new ScannerStatistics();
+        statistics.tokenScanned(new Token(Token.Type.VAR, 1, 1), 3, 10);
+
+        ObjectName name = statistics.register("test");
+        try {
+            Object count = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "TokenCount");
+            assertEquals(1L, count);
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
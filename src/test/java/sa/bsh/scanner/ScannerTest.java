@@ -2,7 +2,11 @@ package sa.bsh.scanner;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class ScannerTest {
@@ -179,4 +183,138 @@ public class ScannerTest {
         assertEquals(new Token(Token.Type.LONG, 1, 1, "0x12l"), tok1);
         assertEquals(new Token(Token.Type.LONG, 1, 7, "0b101L"), tok2);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReset() throws Exception {
+        Scanner scanner = new Scanner("abc\n0x12");
+
+        scanner.scan();
+        scanner.scan();
+        scanner.scan();
+        assertEquals(new Token(Token.Type.EOF, 2, 5), scanner.scan());
+
+        scanner.reset("  while 7L");
+
+        assertEquals(new Token(Token.Type.WHILE, 1, 3), scanner.scan());
+        assertEquals(new Token(Token.Type.LONG, 1, 9, "7L"), scanner.scan());
+        assertEquals(new Token(Token.Type.EOF, 1, 11), scanner.scan());
+    }
+
+    @Test
+    public void testResetTrimsBuffer() throws Exception {
+        char[] identifier = new char[100000];
+        Arrays.fill(identifier, 'a');
+        Scanner scanner = new Scanner(new String(identifier));
+
+        assertEquals(Token.Type.IDENTIFIER, scanner.scan().getType());
+        assertTrue(scanner.getBufferCapacity() >= identifier.length);
+
+        scanner.reset("b");
+
+        assertTrue(scanner.getBufferCapacity() <= 4096);
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 1, "b"), scanner.scan());
+    }
+
+    @Test
+    public void testLocal() throws Exception {
+        Scanner scanner1 = Scanner.local("a");
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 1, "a"), scanner1.scan());
+
+        scanner1.setListener(new ScannerStatistics());
+
+        Scanner scanner2 = Scanner.local("\nb");
+        assertSame(scanner1, scanner2);
+        assertNull(scanner2.getListener());
+        assertEquals(new Token(Token.Type.NEWLINE, 1, 1), scanner2.scan());
+        assertEquals(new Token(Token.Type.IDENTIFIER, 2, 1, "b"), scanner2.scan());
+    }
+
+    @Test
+    public void testNonAsciiCharacters() throws Exception {
+        Scanner scanner = new Scanner("\u0642\u0647\u0648\u0629 _x$1\u00e9 \u00a0");
+
+        Token tok1 = scanner.scan();
+        Token tok2 = scanner.scan();
+        Token tok3 = scanner.scan();
+
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 1, "\u0642\u0647\u0648\u0629"), tok1);
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 6, "_x$1\u00e9"), tok2);
+        // No-break space is not a whitespace.
+        assertEquals(new Token(Token.Type.ILLEGAL, 1, 12, "\u00a0"), tok3);
+    }
+
+    @Test
+    public void testWhitespaces() throws Exception {
+        Scanner scanner = new Scanner("\t\u000b\f x\u001f\u2003y");
+
+        Token tok1 = scanner.scan();
+        Token tok2 = scanner.scan();
+        Token tok3 = scanner.scan();
+
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 5, "x"), tok1);
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 8, "y"), tok2);
+        assertEquals(new Token(Token.Type.EOF, 1, 9), tok3);
+    }
+
+    // The token start class as decided by the chain of checks the class table replaced.
+    private static int expectedStartClass(int ch) {
+        if (ch == -1)
+            return Scanner.START_EOF;
+        if (Character.isJavaIdentifierStart(ch))
+            return Scanner.START_IDENTIFIER;
+        if (ch == '\n' || ch == '\r')
+            return Scanner.START_NEWLINE;
+        if (Character.isWhitespace(ch))
+            return Scanner.START_WHITESPACE;
+        if (Character.isDigit(ch))
+            return Scanner.START_NUMBER;
+        return Scanner.START_ILLEGAL;
+    }
+
+    // The number class as used by the number grammar.
+    private static int expectedNumberClass(int ch) {
+        if (ch == '0')
+            return Scanner.NUMBER_ZERO;
+        if (ch == '1')
+            return Scanner.NUMBER_ONE;
+        if (ch >= '2' && ch <= '9')
+            return Scanner.NUMBER_DIGIT;
+        if (ch != -1 && Character.isDigit(ch))
+            return Scanner.NUMBER_UNICODE_DIGIT;
+        if (ch == 'x' || ch == 'X')
+            return Scanner.NUMBER_X;
+        if (ch == 'b' || ch == 'B')
+            return Scanner.NUMBER_B;
+        if (ch == 'l' || ch == 'L')
+            return Scanner.NUMBER_L;
+        if (ch >= 'a' && ch <= 'f' || ch >= 'A' && ch <= 'F')
+            return Scanner.NUMBER_HEX_LETTER;
+        return Scanner.NUMBER_OTHER;
+    }
+
+    @Test
+    public void testCharacterClasses() throws Exception {
+        // The class table must agree with the Character based checks it replaced, for every char and EOF.
+        for (int ch = -1; ch <= 0xFFFF; ch++) {
+            String message = String.format("U+%04X", ch);
+            assertEquals(message, expectedStartClass(ch), Scanner.startClass(ch));
+            assertEquals(message, expectedNumberClass(ch), Scanner.numberClass(ch));
+            assertEquals(message, Character.isJavaIdentifierPart((char) ch), Scanner.isIdentifierPart(ch));
+        }
+    }
+
+    @Test
+    public void testNumbersTransitions() throws Exception {
+        Scanner scanner = new Scanner("0x1bL 0b12 0xg 0l 10\u0663 0xFfl 0b");
+
+        assertEquals(new Token(Token.Type.LONG, 1, 1, "0x1bL"), scanner.scan());
+        assertEquals(new Token(Token.Type.INTEGER, 1, 7, "0b1"), scanner.scan());
+        assertEquals(new Token(Token.Type.INTEGER, 1, 10, "2"), scanner.scan());
+        assertEquals(new Token(Token.Type.ILLEGAL, 1, 12, "invalid number format"), scanner.scan());
+        assertEquals(new Token(Token.Type.IDENTIFIER, 1, 14, "g"), scanner.scan());
+        assertEquals(new Token(Token.Type.LONG, 1, 16, "0l"), scanner.scan());
+        assertEquals(new Token(Token.Type.INTEGER, 1, 19, "10\u0663"), scanner.scan());
+        assertEquals(new Token(Token.Type.LONG, 1, 23, "0xFfl"), scanner.scan());
+        assertEquals(new Token(Token.Type.ILLEGAL, 1, 29, "invalid number format"), scanner.scan());
+    }
+}
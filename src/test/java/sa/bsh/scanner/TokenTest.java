@@ -99,10 +99,41 @@ public class TokenTest {
         Token tok1 = new Token(Token.Type.INTEGER, position, "6");
         Token tok2 = new Token(Token.Type.DOUBLE, position, "3.4");
         Token tok3 = new Token(Token.Type.STRING, position, "Test");
+        Token tok4 = new Token(Token.Type.LONG, position, "6L");
 
         assertTrue(tok1.isNumber());
         assertTrue(tok2.isNumber());
         assertFalse(tok3.isNumber());
+        assertTrue(tok4.isNumber());
+    }
+
+    @Test
+    public void testIntValue() throws Exception {
+        assertEquals(123, new Token(Token.Type.INTEGER, position, "0123").intValue());
+        assertEquals(18, new Token(Token.Type.INTEGER, position, "0x12").intValue());
+        assertEquals(5, new Token(Token.Type.INTEGER, position, "0b101").intValue());
+        assertEquals(-1, new Token(Token.Type.INTEGER, position, "0xFFFFFFFF").intValue());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testIntValueOverflow() throws Exception {
+        new Token(Token.Type.INTEGER, position, "2147483648").intValue();
+    }
+
+    @Test
+    public void testLongValue() throws Exception {
+        assertEquals(2147483648L, new Token(Token.Type.LONG, position, "2147483648L").longValue());
+        assertEquals(18L, new Token(Token.Type.LONG, position, "0x12l").longValue());
+        assertEquals(-1L, new Token(Token.Type.LONG, position, "0xFFFFFFFFFFFFFFFFL").longValue());
+        assertEquals(-1L, new Token(Token.Type.INTEGER, position, "0xFFFFFFFF").longValue());
+    }
+
+    @Test
+    public void testDoubleValue() throws Exception {
+        assertEquals(3.25, new Token(Token.Type.DOUBLE, position, "3.25").doubleValue(), 0.0);
+        assertEquals(7.0, new Token(Token.Type.INTEGER, position, "7").doubleValue(), 0.0);
+        assertEquals(5.0, new Token(Token.Type.LONG, position, "5L").doubleValue(), 0.0);
+        assertEquals(4294967296.0, new Token(Token.Type.LONG, position, "0x100000000L").doubleValue(), 0.0);
     }
 
     @Test